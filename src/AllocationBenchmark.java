@@ -0,0 +1,43 @@
+import com.sun.management.ThreadMXBean;
+
+import java.lang.management.ManagementFactory;
+
+// measures memory allocated by Search per searched position, not used by the game
+// "AllocationBenchmark [time]" - every round searches the start position for time (in milliseconds)
+// first rounds include loading of classes and compilation, so only the last ones matter
+public class AllocationBenchmark {
+    private static final int numRounds = 5;
+
+    public static void main(String[] args) throws InterruptedException {
+        long time = args.length > 0 ? Long.parseLong(args[0]) : 1000;
+        var threadBean = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        byte[] field = new byte[100];
+        field[44] = Game.white;
+        field[45] = Game.black;
+        field[54] = Game.black;
+        field[55] = Game.white;
+        byte[] moves = new byte[40];
+        // white moves first (as in Game)
+        int numMoves = Game.findMoves(field, Game.white, moves);
+
+        for (int round = 1; round <= numRounds; ++round) {
+            Search search = new Search(field.clone(), Game.CellColor.WHITE, moves, numMoves, 0);
+            // search is run in this thread (allocations are counted per thread) and stopped by another one
+            Thread timer = new Thread(() -> {
+                try {
+                    Thread.sleep(time);
+                } catch (InterruptedException ignored) {
+                }
+                search.stop();
+            });
+            timer.start();
+            long before = threadBean.getCurrentThreadAllocatedBytes();
+            search.run();
+            long allocated = threadBean.getCurrentThreadAllocatedBytes() - before;
+            timer.join();
+            System.out.printf("round %d: %d positions, %d bytes, %.6f bytes per position%n",
+                    round, search.getNodes(), allocated, (double) allocated / search.getNodes());
+        }
+    }
+}
@@ -9,43 +9,69 @@ public class Game {
         invokeLater(() -> ex.setVisible(true));
     }
 
-    enum Opponent {PLAYER, BEGINNER, PROFESSIONAL}
+    // selectivity is used by search of smartMove (see Search.probCutThresholds)
+    enum Opponent {
+        PLAYER(0), BEGINNER(0), PROFESSIONAL(2);
+
+        public final int selectivity;
+        Opponent(int selectivity) {
+            this.selectivity = selectivity;
+        }
+    }
     enum CellColor {COLORLESS, WHITE, BLACK}
 
-    private static final Position[] directions = {
-            new Position(0, 1),
-            new Position(1, 1),
-            new Position(1, 0),
-            new Position(1, -1),
-            new Position(0, -1),
-            new Position(-1, -1),
-            new Position(-1, 0),
-            new Position(-1, 1),
-    };
+    // colors of cells on field (same as ordinals of CellColor)
+    public static final byte colorless = 0;
+    public static final byte white = 1;
+    public static final byte black = 2;
+    // values() makes a new array every time
+    private static final CellColor[] cellColors = CellColor.values();
+
+    // differences of indices of neighbour cells (row of field has 10 cells)
+    private static final int[] directions = {10, 11, 1, -9, -10, -11, -1, 9};
 
     // contains field and boundary of colorless cells (1 cell on each side)
+    // cell (x, y) has index (y + 1) * 10 + x + 1, see square
     // field in Game and field in GameWindow work independently
     // but both describe common entity (field) and must be synchronised
-    private static final CellColor[][] field = new CellColor[10][10];
+    private static final byte[] field = new byte[100];
     // there can't be more than half possible moves or changed cells, at least I think so
-    public static Position[] possibleMoves = new Position[40];
-    public static Position[] changedCells = new Position[40];
+    public static final byte[] possibleMoves = new byte[40];
+    public static int numPossibleMoves = 0;
+    // first cell is position of the move, others are reversed cells
+    public static final byte[] changedCells = new byte[40];
+    public static int numChangedCells = 0;
 
     // players that can make a move (first is white)
     public static boolean[] canMove = {true, true};
 
-    public static final Position[][] previousMoves = new Position[64][40];
+    public static final byte[][] previousMoves = new byte[64][40];
+    private static final int[] numPreviousCells = new int[64];
+    // color of every previous move (one player can make several moves in a row if another can't move)
+    private static final byte[] previousColors = new byte[64];
     public static int stepNum = 0;
-    private static CellColor curColor;
+    private static byte curColor;
     private static Opponent opponent;
     public static CellColor playerColor;
 
+    // time of smartMove search (in milliseconds)
+    private static final long searchTime = 1000;
+    // search of opponent's move, works in its own thread (null if opponent doesn't think now)
+    private static Search opponentSearch;
+
     public static void setOpponent(Opponent newOpponent) {
         opponent = newOpponent;
     }
     public static Opponent getOpponent() {
         return opponent;
     }
+    public static CellColor getCurColor() {
+        return cellColors[curColor];
+    }
+    // for background search (it must not change the real field)
+    public static byte[] copyField() {
+        return field.clone();
+    }
     public static void startGame(boolean playerFirst) {
         // only for score
         if (playerFirst) {
@@ -55,18 +81,16 @@ public class Game {
         }
 
         // clear field
-        for (var row: field) {
-            Arrays.fill(row, CellColor.COLORLESS);
-        }
+        Arrays.fill(field, colorless);
         stepNum = 0;
         // start with white
-        curColor = CellColor.BLACK;
+        curColor = black;
 
         // initial position
-        field[4][4] = CellColor.WHITE;
-        field[4][5] = CellColor.BLACK;
-        field[5][4] = CellColor.BLACK;
-        field[5][5] = CellColor.WHITE;
+        field[44] = white;
+        field[45] = black;
+        field[54] = black;
+        field[55] = white;
 
         if (playerFirst) {
             changeColor();
@@ -83,21 +107,27 @@ public class Game {
         if (opponent != Opponent.PLAYER) {
             changeColor();
             updatePossibleMoves();
-            if (possibleMoves[0] != null) {
-                canMove[curColor.ordinal() - 1] = true;
+            if (numPossibleMoves > 0) {
+                canMove[curColor - 1] = true;
                 if (opponent == Opponent.BEGINNER) {
                     setMove(simpleMove());
                 } else {
-                    setMove(smartMove());
+                    // the rest of the step is done when the move is found
+                    smartMove();
+                    return;
                 }
             } else {
-                canMove[curColor.ordinal() - 1] = false;
-                if (!canMove[oppositeColor().ordinal() - 1]) {
+                canMove[curColor - 1] = false;
+                if (!canMove[oppositeColor() - 1]) {
                     GameWindow.pcs.firePropertyChange("finishGame", null, null);
                     return;
                 }
             }
         }
+        finishStep();
+    }
+
+    private static void finishStep() {
         changeColor();
         updatePossibleMoves();
         playerStep();
@@ -105,44 +135,60 @@ public class Game {
 
     public static void playerStep() {
         // finish game if there are no moves
-        if (possibleMoves[0] == null) {
-            canMove[curColor.ordinal() - 1] = false;
-            if (!canMove[oppositeColor().ordinal() - 1]) {
+        if (numPossibleMoves == 0) {
+            canMove[curColor - 1] = false;
+            if (!canMove[oppositeColor() - 1]) {
                 GameWindow.pcs.firePropertyChange("finishGame", null, null);
             } else {
                 step();
             }
         } else {
-            canMove[curColor.ordinal() - 1] = true;
+            canMove[curColor - 1] = true;
             GameWindow.pcs.firePropertyChange("nextMove", null,
-                    new ColoredCells(curColor, possibleMoves));
+                    new ColoredCells(cellColors[curColor], positions(possibleMoves, numPossibleMoves)));
         }
     }
     // fired from GameWindow when move is chosen
     public static void setMove(Position pos) {
+        setMove(square(pos.x, pos.y));
+    }
+
+    public static void setMove(int pos) {
         safeSetMove(pos);
 
         GameWindow.pcs.firePropertyChange("setMove", null,
-                new ColoredCells(curColor, changedCells));
+                new ColoredCells(cellColors[curColor], positions(changedCells, numChangedCells)));
     }
 
-    public static void safeSetMove(Position pos) {
+    public static void safeSetMove(int pos) {
         updateChangedCells(pos);
-        for (int i = 0; changedCells[i] != null; ++i) {
-            field[changedCells[i].y + 1][changedCells[i].x + 1] = curColor;
+        for (int i = 0; i < numChangedCells; ++i) {
+            field[changedCells[i]] = curColor;
         }
-        previousMoves[stepNum] = changedCells.clone();
+        System.arraycopy(changedCells, 0, previousMoves[stepNum], 0, numChangedCells);
+        numPreviousCells[stepNum] = numChangedCells;
+        previousColors[stepNum] = curColor;
         ++stepNum;
     }
 
+    // cancels moves up to the last move of player (with opponent)
+    // if opponent is thinking, its search is cancelled too
     public static void stepBack() {
-        if (stepNum == 0 || stepNum == 1 && opponent != Opponent.PLAYER) {
+        int lastStep = stepNum - 1;
+        if (opponent != Opponent.PLAYER) {
+            while (lastStep >= 0 && previousColors[lastStep] != playerColor.ordinal()) {
+                --lastStep;
+            }
+        }
+        // nothing to cancel (there are no moves or only moves of opponent)
+        if (lastStep < 0) {
             return;
         }
-        changeColor();
-        deleteMove();
-        if (opponent != Opponent.PLAYER) {
-            changeColor();
+        if (opponentSearch != null) {
+            opponentSearch.stop();
+            opponentSearch = null;
+        }
+        while (stepNum > lastStep) {
             deleteMove();
         }
         updatePossibleMoves();
@@ -152,24 +198,27 @@ public class Game {
     public static void deleteMove() {
         safeDeleteMove();
         GameWindow.pcs.firePropertyChange("deleteMove", null,
-                new ColoredCells(oppositeColor(), changedCells));
+                new ColoredCells(cellColors[oppositeColor()], positions(changedCells, numChangedCells)));
     }
 
+    // after it it's the turn of color that made the deleted move
     public static void safeDeleteMove() {
         --stepNum;
-        changedCells = previousMoves[stepNum];
-        field[changedCells[0].y + 1][changedCells[0].x + 1] = CellColor.COLORLESS;
-        for (int i = 1; changedCells[i] != null; ++i) {
-            field[changedCells[i].y + 1][changedCells[i].x + 1] = oppositeColor();
+        curColor = previousColors[stepNum];
+        numChangedCells = numPreviousCells[stepNum];
+        System.arraycopy(previousMoves[stepNum], 0, changedCells, 0, numChangedCells);
+        field[changedCells[0]] = colorless;
+        for (int i = 1; i < numChangedCells; ++i) {
+            field[changedCells[i]] = oppositeColor();
         }
     }
 
-    public static Position simpleMove() {
-        Position bestMove = possibleMoves[0];
+    public static int simpleMove() {
+        int bestMove = possibleMoves[0];
         int maxScore = 0;
         int score;
-        for (int i = 0; possibleMoves[i] != null; ++i) {
-            Position move = possibleMoves[i];
+        for (int i = 0; i < numPossibleMoves; ++i) {
+            int move = possibleMoves[i];
             score = getScore(move);
             if (score > maxScore) {
                 maxScore = score;
@@ -179,66 +228,73 @@ public class Game {
         return bestMove;
     }
 
-    public static Position smartMove() {
-        Position bestMove = possibleMoves[0];
-        int maxScore = -100;
-        int score1, score2;
-        for (int i = 0; possibleMoves[i] != null; ++i) {
-            Position move = possibleMoves[i];
-            score1 = getScore(move);
-            safeSetMove(move);
-            changeColor();
-            updatePossibleMoves();
-            for (int j = 0; possibleMoves[j] != null; ++j) {
-                Position move2 = possibleMoves[j];
-                score2 = getScore(move2);
-                if (score1 - score2 > maxScore) {
-                    maxScore = score1 - score2;
-                    bestMove = move;
+    // search works in its own thread (so GUI is not blocked), the move is made in GUI thread
+    public static void smartMove() {
+        Search search = new Search(copyField(), cellColors[curColor], possibleMoves, numPossibleMoves,
+                opponent.selectivity);
+        opponentSearch = search;
+        Thread thread = new Thread(() -> {
+            int move = search.findBestMove(searchTime);
+            invokeLater(() -> {
+                // search was cancelled by step back
+                if (opponentSearch != search) {
+                    return;
                 }
-            }
-            changeColor();
-            safeDeleteMove();
-            updatePossibleMoves();
-        }
-        return bestMove;
+                opponentSearch = null;
+                setMove(move);
+                finishStep();
+            });
+        }, "opponent");
+        thread.setDaemon(true);
+        thread.start();
     }
 
-    public static int getScore(Position move) {
+    public static int getScore(int move) {
         updateChangedCells(move);
         int score = 0;
-        for (int cellInd = 0; changedCells[cellInd] != null; ++cellInd) {
-            Position cell = changedCells[cellInd];
+        for (int cellInd = 0; cellInd < numChangedCells; ++cellInd) {
+            int cell = changedCells[cellInd];
             score += 1;
-            if (cell.x == 0 || cell.x == 7 || cell.y == 0 || cell.y == 7) {
+            if (cell % 10 == 1 || cell % 10 == 8 || cell / 10 == 1 || cell / 10 == 8) {
                 score += 1;
             }
         }
-        if (move.x == 0 || move.x == 7) {
+        if (move % 10 == 1 || move % 10 == 8) {
             score += 0.4;
         }
-        if (move.y == 0 || move.y == 7) {
+        if (move / 10 == 1 || move / 10 == 8) {
             score += 0.4;
         }
         return score;
     }
 
     public static void updatePossibleMoves() {
-        CellColor oppColor = oppositeColor();
-        int numPossibleMoves = 0;
+        numPossibleMoves = findMoves(field, curColor, possibleMoves);
+    }
+
+    // fills changedCells with move on pos and cells that will reverse after it
+    public static void updateChangedCells(int pos) {
+        changedCells[0] = (byte) pos;
+        numChangedCells = findReversed(field, pos, curColor, changedCells, 1);
+    }
+
+    // rules work on any field with boundary (so Search can use them on its copy)
+    // writes possible moves of color to moves and returns their number
+    public static int findMoves(byte[] field, byte color, byte[] moves) {
+        byte oppColor = opposite(color);
+        int numMoves = 0;
         for (int x = 1; x < 9; ++x) {
-            for (int y = 1; y < 9; ++y) {
-                if (field[y][x] == CellColor.COLORLESS) {
-                    for (Position dir: directions) {
-                        if (field[y + dir.y][x + dir.x] == oppColor) {
-                            int x1 = x + 2 * dir.x, y1 = y + 2 * dir.y;
-                            while (field[y1][x1] == oppColor) {
-                                x1 += dir.x;
-                                y1 += dir.y;
+            for (int pos = 10 + x; pos < 90; pos += 10) {
+                if (field[pos] == colorless) {
+                    for (int dir: directions) {
+                        if (field[pos + dir] == oppColor) {
+                            int cell = pos + 2 * dir;
+                            while (field[cell] == oppColor) {
+                                cell += dir;
                             }
-                            if (field[y1][x1] == curColor) {
-                                possibleMoves[numPossibleMoves] = new Position(x - 1, y - 1);
-                                ++numPossibleMoves;
+                            if (field[cell] == color) {
+                                moves[numMoves] = (byte) pos;
+                                ++numMoves;
                                 break;
                             }
                         }
@@ -246,55 +302,66 @@ public class Game {
                 }
             }
         }
-        possibleMoves[numPossibleMoves] = null;
+        return numMoves;
     }
 
-    // returns array of cells that will reverse after move on pos
-    public static void updateChangedCells(Position pos) {
-        CellColor oppColor = oppositeColor();
-        changedCells[0] = pos;
-        int numChangedCells = 1;
-        pos.x += 1;
-        pos.y += 1;
-        for (Position dir: directions) {
-            if (field[pos.y + dir.y][pos.x + dir.x] == oppColor) {
-                int x1 = pos.x + 2 * dir.x, y1 = pos.y + 2 * dir.y;
-                while (field[y1][x1] == oppColor) {
-                    x1 += dir.x;
-                    y1 += dir.y;
+    // writes cells that will reverse after move of color on pos to cells (starting from index from)
+    // returns index after the last written cell, field doesn't change
+    public static int findReversed(byte[] field, int pos, byte color, byte[] cells, int from) {
+        byte oppColor = opposite(color);
+        int numCells = from;
+        for (int dir: directions) {
+            if (field[pos + dir] == oppColor) {
+                int cell = pos + 2 * dir;
+                while (field[cell] == oppColor) {
+                    cell += dir;
                 }
-                if (field[y1][x1] == curColor) {
-                    x1 -= dir.x;
-                    y1 -= dir.y;
-                    while (x1 != pos.x || y1 != pos.y) {
-                        changedCells[numChangedCells] = new Position(x1 - 1, y1 - 1);
-                        ++numChangedCells;
-                        x1 -= dir.x;
-                        y1 -= dir.y;
+                if (field[cell] == color) {
+                    cell -= dir;
+                    while (cell != pos) {
+                        cells[numCells] = (byte) cell;
+                        ++numCells;
+                        cell -= dir;
                     }
                 }
             }
         }
-        pos.x -= 1;
-        pos.y -= 1;
-        changedCells[numChangedCells] = null;
+        return numCells;
+    }
+
+    public static byte opposite(byte color) {
+        return (color == white ? black : white);
+    }
+
+    // index of cell (x, y) on field, x and y are from 0 to 7
+    public static int square(int x, int y) {
+        return (y + 1) * 10 + x + 1;
+    }
+
+    // only for GameWindow, array ends with null
+    private static Position[] positions(byte[] cells, int numCells) {
+        Position[] result = new Position[numCells + 1];
+        for (int i = 0; i < numCells; ++i) {
+            result[i] = new Position(cells[i] % 10 - 1, cells[i] / 10 - 1);
+        }
+        return result;
     }
 
     private static void changeColor() {
         curColor = oppositeColor();
     }
 
-    private static CellColor oppositeColor() {
-        return (curColor == CellColor.WHITE ? CellColor.BLACK : CellColor.WHITE);
+    private static byte oppositeColor() {
+        return opposite(curColor);
     }
 
     public static int[] getScore() {
         int[] score = new int[2];
         for (int r = 1; r < 9; ++r) {
             for (int c = 1; c < 9; ++c) {
-                if (field[r][c] == CellColor.WHITE) {
+                if (field[r * 10 + c] == white) {
                     ++score[0];
-                } else if (field[r][c] == CellColor.BLACK) {
+                } else if (field[r * 10 + c] == black) {
                     ++score[1];
                 }
             }
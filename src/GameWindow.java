@@ -10,6 +10,10 @@ public final class GameWindow extends JFrame {
     public static final int height = getLocalGraphicsEnvironment().getMaximumWindowBounds().height;
     public static final int width = getLocalGraphicsEnvironment().getMaximumWindowBounds().width;
     private static final int[] bestScore = {-1, -1};
+    // how often scores of analysis are repainted (in milliseconds)
+    private static final int analysisDelay = 200;
+    // show scores of possible moves (switched by button in GameLayout)
+    private static boolean analysisMode = false;
 
     // field in Game and field in GameWindow work independently
     // but both describe common entity (field) and must be synchronised
@@ -17,6 +21,12 @@ public final class GameWindow extends JFrame {
     // create empty pcs
     public static final PropertyChangeSupport pcs = new PropertyChangeSupport(new Object());
 
+    // possible moves that are shown now (null if there are no such moves)
+    private Game.Position[] hintMoves;
+    private GameLayout.UnselectedChip[] hintChips;
+    private Search analysis;
+    private Timer analysisTimer;
+
     public GameWindow() {
         // fullscreen
         setUndecorated(true);
@@ -81,7 +91,8 @@ public final class GameWindow extends JFrame {
         pcs.addPropertyChangeListener("chipSelected", e -> {
             Game.setMove((Game.Position) e.getNewValue());
             invokeLater(() -> {
-                if (Game.getOpponent() != Game.Opponent.PLAYER) {
+                // search of PROFESSIONAL takes time anyway (and doesn't block GUI)
+                if (Game.getOpponent() == Game.Opponent.BEGINNER) {
                     try {
                         Thread.sleep(500);
                     } catch (InterruptedException ex) {
@@ -108,6 +119,20 @@ public final class GameWindow extends JFrame {
             GameLayout.updateScore();
         });
 
+        // game listener, fires in GameLayout (analysis button)
+        // start or stop analysis of shown possible moves
+        pcs.addPropertyChangeListener("analysisMode", e -> {
+            analysisMode = !analysisMode;
+            if (hintChips == null) {
+                return;
+            }
+            if (analysisMode) {
+                startAnalysis();
+            } else {
+                stopAnalysis();
+            }
+        });
+
         // game listener, fires in Game.step
         // finishes this game (not the session)
         pcs.addPropertyChangeListener("finishGame", e -> {
@@ -191,6 +216,8 @@ public final class GameWindow extends JFrame {
             scoreLabel.setText("2:2");
 
             add(new SimpleComponent.Button("Step back", 30, 300, height / 2, e -> Game.stepBack()));
+            add(new SimpleComponent.Button("Analysis", 30, 300, height / 2 + 100,
+                    e -> pcs.firePropertyChange("analysisMode", null, null)));
 
         }
 
@@ -258,12 +285,34 @@ public final class GameWindow extends JFrame {
                 setBorderPainted(false);
                 setFocusPainted(false);
                 setContentAreaFilled(false);
+
+                // score of analysis is drawn over the icon
+                setHorizontalTextPosition(CENTER);
+                setVerticalTextPosition(CENTER);
+                setMargin(new Insets(0, 0, 0, 0));
+                setFont(getFont().deriveFont(Font.BOLD, 14f));
+                setForeground(Color.RED);
+            }
+
+            // depth 0 means that there is no score yet
+            // finished game is shown as difference of chips with sign (so it differs from heuristic score)
+            public void setScore(int score, int depth) {
+                if (depth == 0) {
+                    setText(null);
+                    setToolTipText(null);
+                } else if (Math.abs(score) >= Search.winScore) {
+                    setText(String.format("%+d", score - Integer.signum(score) * Search.winScore));
+                    setToolTipText("end of the game");
+                } else {
+                    setText(Integer.toString(score));
+                    setToolTipText("depth " + depth);
+                }
             }
         }
     }
 
     public void nextMove(Game.CellColor color, Game.Position[] moves) {
-        JButton[] chips = new JButton[moves.length];
+        GameLayout.UnselectedChip[] chips = new GameLayout.UnselectedChip[moves.length];
         for (int i = 0; moves[i] != null; ++i) {
             // to use in lambda
             int _i = i;
@@ -271,6 +320,11 @@ public final class GameWindow extends JFrame {
                     e -> pcs.firePropertyChange("selected", null, moves[_i]));
             add(chips[i]);
         }
+        hintMoves = moves;
+        hintChips = chips;
+        if (analysisMode) {
+            startAnalysis();
+        }
         repaint();
         pcs.addPropertyChangeListener("selected", e -> {
             // remove temporary chips and listeners
@@ -283,6 +337,9 @@ public final class GameWindow extends JFrame {
             pcs.removePropertyChangeListener("clear", pcs.getPropertyChangeListeners("clear")[0]);
             pcs.removePropertyChangeListener("selected", pcs.getPropertyChangeListeners("selected")[0]);
 
+            stopAnalysis();
+            hintMoves = null;
+            hintChips = null;
             for (int i = 0; chips[i] != null; ++i) {
                 remove(chips[i]);
             }
@@ -290,6 +347,61 @@ public final class GameWindow extends JFrame {
         });
     }
 
+    // search runs in background thread and only writes scores
+    // timer takes them in GUI thread, so repaints are not more often than analysisDelay
+    private void startAnalysis() {
+        byte[] moves = new byte[hintMoves.length];
+        int numMoves = 0;
+        while (hintMoves[numMoves] != null) {
+            moves[numMoves] = (byte) Game.square(hintMoves[numMoves].x, hintMoves[numMoves].y);
+            ++numMoves;
+        }
+        analysis = new Search(Game.copyField(), Game.getCurColor(), moves, numMoves, 0);
+        Thread thread = new Thread(analysis, "analysis");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        thread.start();
+
+        // local copies, so event that came after stopAnalysis can be ignored
+        Search search = analysis;
+        GameLayout.UnselectedChip[] chips = hintChips;
+        int[] shownVersion = {0};
+        analysisTimer = new Timer(analysisDelay, e -> {
+            if (analysis != search) {
+                return;
+            }
+            // checked before the scores are taken, so the last of them are shown too
+            if (search.isFinished()) {
+                analysisTimer.stop();
+            }
+            if (search.getVersion() == shownVersion[0]) {
+                return;
+            }
+            shownVersion[0] = search.getVersion();
+            int[] scores = search.getScores();
+            int[] depths = search.getDepths();
+            for (int i = 0; i < scores.length; ++i) {
+                chips[i].setScore(scores[i], depths[i]);
+            }
+            repaint();
+        });
+        analysisTimer.start();
+    }
+
+    // search thread finishes on its next step, scores are not shown anymore
+    private void stopAnalysis() {
+        if (analysis == null) {
+            return;
+        }
+        analysis.stop();
+        analysisTimer.stop();
+        analysis = null;
+        analysisTimer = null;
+        for (int i = 0; hintChips[i] != null; ++i) {
+            hintChips[i].setScore(0, 0);
+        }
+    }
+
     // one of positions in changed must be empty (it's position of the move)
     public void setMove(Game.CellColor color, Game.Position[] changedCells) {
         Game.Position pos = changedCells[0];
@@ -0,0 +1,439 @@
+import java.util.Arrays;
+
+// iterative alpha-beta search on a copy of the field
+// works in its own thread, so it never touches field in Game
+// search itself doesn't allocate anything (all buffers are made in constructor)
+public class Search implements Runnable {
+    private static final int infinity = 1_000_000;
+    // finished game is always better (or worse) than any heuristic score
+    public static final int winScore = 1000;
+    // moves are sorted by heuristic score after them, but only far from leaves
+    // (near leaves sorting costs more than it saves)
+    private static final int minOrderingDepth = 3;
+    // time is checked once per this number of positions
+    private static final int timeCheckMask = 1023;
+
+    // weights of cells for heuristic score (corners are good, cells near them are bad)
+    // indices are the same as in field
+    private static final int[] cellWeights = new int[100];
+
+    // ProbCut: result of deep search is predicted by shallow search (deep = a * shallow + b, error has deviation sigma)
+    // if the prediction is out of window with enough confidence, node is cut without deep search
+    // confidence for every selectivity level (less threshold - more cuts), 0 - no ProbCut
+    private static final double[] probCutThresholds = {0, 2.0, 1.5, 1.0};
+    private static final int minProbCutDepth = 3;
+    // deepest calibrated depth, deeper nodes are searched without ProbCut
+    static final int maxProbCutDepth = 10;
+    // with less empty cells search goes to the end of the game, so there is nothing to predict
+    private static final int minProbCutEmpty = 10;
+    // fitted by "SelfPlay calibrate 300": {stage (empty cells / 10), depth, shallow depth, a, b, sigma}
+    // there can be several shallow depths for one depth (multi-ProbCut), shallow ones are checked first
+    private static final double[][] probCutParams = {
+            {1, 3, 1, 1.059, 6.30, 32.39}, // 448 positions
+            {1, 4, 2, 1.080, 8.38, 36.71}, // 448 positions
+            {1, 5, 1, 1.143, 10.56, 54.90}, // 448 positions
+            {1, 6, 2, 1.173, 16.01, 60.60}, // 448 positions
+            {1, 7, 1, 1.228, 12.67, 80.51}, // 448 positions
+            {1, 7, 3, 1.184, 5.09, 60.51}, // 448 positions
+            {1, 8, 2, 1.268, 23.88, 85.62}, // 448 positions
+            {1, 8, 4, 1.194, 13.86, 64.62}, // 448 positions
+            {1, 9, 1, 1.326, 15.91, 107.62}, // 448 positions
+            {1, 9, 3, 1.285, 7.65, 88.76}, // 448 positions
+            {1, 10, 2, 1.377, 31.09, 111.86}, // 407 positions
+            {1, 10, 4, 1.304, 22.73, 93.10}, // 407 positions
+            {2, 3, 1, 1.040, 2.66, 22.50}, // 467 positions
+            {2, 4, 2, 1.060, 2.83, 23.02}, // 467 positions
+            {2, 5, 1, 1.085, 2.74, 31.02}, // 467 positions
+            {2, 6, 2, 1.095, 3.16, 29.37}, // 467 positions
+            {2, 7, 1, 1.133, 3.51, 39.56}, // 467 positions
+            {2, 7, 3, 1.101, 0.50, 27.17}, // 467 positions
+            {2, 8, 2, 1.166, 5.46, 39.36}, // 467 positions
+            {2, 8, 4, 1.111, 2.32, 25.73}, // 467 positions
+            {2, 9, 1, 1.199, 4.91, 50.02}, // 467 positions
+            {2, 9, 3, 1.172, 1.66, 37.84}, // 467 positions
+            {2, 10, 2, 1.240, 8.77, 51.05}, // 467 positions
+            {2, 10, 4, 1.185, 5.42, 38.55}, // 467 positions
+            {3, 3, 1, 1.019, 2.37, 14.01}, // 439 positions
+            {3, 4, 2, 1.005, 1.45, 12.56}, // 439 positions
+            {3, 5, 1, 1.038, 2.54, 16.97}, // 439 positions
+            {3, 6, 2, 1.027, 2.24, 17.10}, // 439 positions
+            {3, 7, 1, 1.052, 3.29, 21.09}, // 439 positions
+            {3, 7, 3, 1.037, 0.80, 14.44}, // 439 positions
+            {3, 8, 2, 1.066, 3.51, 20.38}, // 439 positions
+            {3, 8, 4, 1.067, 1.96, 13.83}, // 439 positions
+            {3, 9, 1, 1.095, 4.48, 25.44}, // 439 positions
+            {3, 9, 3, 1.084, 1.83, 18.91}, // 439 positions
+            {3, 10, 2, 1.096, 4.79, 25.30}, // 439 positions
+            {3, 10, 4, 1.104, 3.16, 19.03}, // 439 positions
+            {4, 3, 1, 1.002, 1.00, 6.05}, // 466 positions
+            {4, 4, 2, 0.998, 0.40, 5.78}, // 466 positions
+            {4, 5, 1, 0.999, 1.34, 8.04}, // 466 positions
+            {4, 6, 2, 1.003, 0.61, 6.91}, // 466 positions
+            {4, 7, 1, 1.005, 1.79, 9.31}, // 466 positions
+            {4, 7, 3, 1.007, 0.78, 6.45}, // 466 positions
+            {4, 8, 2, 1.013, 1.07, 8.77}, // 466 positions
+            {4, 8, 4, 1.022, 0.69, 5.31}, // 466 positions
+            {4, 9, 1, 1.018, 2.37, 10.88}, // 466 positions
+            {4, 9, 3, 1.022, 1.34, 8.22}, // 466 positions
+            {4, 10, 2, 1.031, 1.50, 10.24}, // 466 positions
+            {4, 10, 4, 1.041, 1.12, 7.31}, // 466 positions
+            {5, 3, 1, 0.960, 1.02, 2.25}, // 438 positions
+            {5, 4, 2, 0.977, 0.24, 2.28}, // 438 positions
+            {5, 5, 1, 0.943, 1.54, 2.55}, // 438 positions
+            {5, 6, 2, 0.968, 0.05, 3.00}, // 438 positions
+            {5, 7, 1, 0.936, 2.08, 3.25}, // 438 positions
+            {5, 7, 3, 0.978, 1.08, 2.22}, // 438 positions
+            {5, 8, 2, 0.971, -0.02, 3.38}, // 438 positions
+            {5, 8, 4, 1.000, -0.26, 2.19}, // 438 positions
+            {5, 9, 1, 0.952, 2.43, 3.50}, // 438 positions
+            {5, 9, 3, 0.993, 1.42, 2.61}, // 438 positions
+            {5, 10, 2, 0.994, -0.37, 3.47}, // 438 positions
+            {5, 10, 4, 1.017, -0.62, 2.59}, // 438 positions
+    };
+    // probCutParams grouped by stage and depth: {shallow depth, a, b, sigma, shallow depth, a, b, sigma, ...}
+    private static final double[][][] probCutChecks = new double[6][maxProbCutDepth + 1][];
+
+    static {
+        int[][] weights = {
+                {100, -20, 10, 5, 5, 10, -20, 100},
+                {-20, -50, -2, -2, -2, -2, -50, -20},
+                {10, -2, 1, 1, 1, 1, -2, 10},
+                {5, -2, 1, 0, 0, 1, -2, 5},
+                {5, -2, 1, 0, 0, 1, -2, 5},
+                {10, -2, 1, 1, 1, 1, -2, 10},
+                {-20, -50, -2, -2, -2, -2, -50, -20},
+                {100, -20, 10, 5, 5, 10, -20, 100},
+        };
+        for (int y = 0; y < 8; ++y) {
+            for (int x = 0; x < 8; ++x) {
+                cellWeights[Game.square(x, y)] = weights[y][x];
+            }
+        }
+
+        for (double[][] stageChecks: probCutChecks) {
+            for (int depth = 0; depth <= maxProbCutDepth; ++depth) {
+                stageChecks[depth] = new double[0];
+            }
+        }
+        // rows are sorted by shallow depth in probCutParams
+        for (double[] row: probCutParams) {
+            double[][] stageChecks = probCutChecks[(int) row[0]];
+            int depth = (int) row[1];
+            double[] checks = Arrays.copyOf(stageChecks[depth], stageChecks[depth].length + 4);
+            System.arraycopy(row, 2, checks, checks.length - 4, 4);
+            stageChecks[depth] = checks;
+        }
+    }
+
+    // same layout as field in Game (boundary of colorless cells on each side)
+    private final byte[] field;
+    private final byte color;
+    private final byte[] moves;
+    private final int numMoves;
+    private final int numEmpty;
+    private final int selectivity;
+
+    // reversed cells of every ply (needed to undo a move)
+    private final byte[][] reversed = new byte[64][20];
+    // possible moves of every ply, sorted by keys
+    private final byte[][] plyMoves = new byte[64][40];
+    private final int[][] moveKeys = new int[64][40];
+    // order of root moves in findBestMove (best move of the last depth is first)
+    private final int[] order;
+
+    // results for every root move, written by search thread and read by GUI
+    private final int[] scores;
+    private final int[] depths;
+    private int version = 0;
+    // number of searched positions, read it only after search is finished
+    private long nodes = 0;
+    // last depth searched completely by findBestMove
+    private int bestMoveDepth = 0;
+
+    // time of findBestMove (in nanoseconds), 0 - no limit
+    private long startTime = 0;
+    private long timeLimit = 0;
+    private volatile boolean stopped = false;
+    // run searched to the end of the game, there will be no new scores
+    private volatile boolean finished = false;
+
+    // moves are in the same order as in Game.possibleMoves
+    // selectivity is index in probCutThresholds
+    public Search(byte[] field, Game.CellColor color, byte[] moves, int numMoves, int selectivity) {
+        this.field = field;
+        this.color = (byte) color.ordinal();
+        this.moves = Arrays.copyOf(moves, numMoves);
+        this.numMoves = numMoves;
+        this.selectivity = selectivity;
+        order = new int[numMoves];
+        scores = new int[numMoves];
+        depths = new int[numMoves];
+
+        int empty = 0;
+        for (int y = 0; y < 8; ++y) {
+            for (int x = 0; x < 8; ++x) {
+                if (field[Game.square(x, y)] == Game.colorless) {
+                    ++empty;
+                }
+            }
+        }
+        numEmpty = empty;
+    }
+
+    public void stop() {
+        stopped = true;
+    }
+
+    // increases every time a new score is found (so GUI repaints only if needed)
+    public synchronized int getVersion() {
+        return version;
+    }
+
+    public synchronized int[] getScores() {
+        return scores.clone();
+    }
+
+    // depth 0 means that move was not searched yet
+    public synchronized int[] getDepths() {
+        return depths.clone();
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public int getBestMoveDepth() {
+        return bestMoveDepth;
+    }
+
+    private synchronized void publish(int moveInd, int score, int depth) {
+        scores[moveInd] = score;
+        depths[moveInd] = depth;
+        ++version;
+    }
+
+    // every iteration searches all root moves one ply deeper
+    // search is complete when it reaches the end of the game
+    public void run() {
+        byte oppColor = Game.opposite(color);
+        for (int depth = 1; depth <= numEmpty && !stopped; ++depth) {
+            for (int i = 0; i < numMoves; ++i) {
+                int numReversed = makeMove(moves[i], color, 0);
+                int score = -negamax(depth - 1, 1, -infinity, infinity, oppColor, false);
+                undoMove(moves[i], oppColor, 0, numReversed);
+                if (stopped) {
+                    return;
+                }
+                publish(i, score, depth);
+            }
+        }
+        finished = !stopped;
+    }
+
+    // iterative search of the best move until time (in milliseconds) is over
+    // unlike run, scores of other moves are only bounds, so they are not published
+    public int findBestMove(long time) {
+        startTime = System.nanoTime();
+        timeLimit = time * 1_000_000;
+        byte oppColor = Game.opposite(color);
+        for (int i = 0; i < numMoves; ++i) {
+            order[i] = i;
+        }
+        for (int depth = 1; depth <= numEmpty; ++depth) {
+            int alpha = -infinity;
+            int bestInd = 0;
+            for (int i = 0; i < numMoves; ++i) {
+                int move = moves[order[i]];
+                int numReversed = makeMove(move, color, 0);
+                int score;
+                if (i == 0) {
+                    score = -negamax(depth - 1, 1, -infinity, infinity, oppColor, false);
+                } else {
+                    // the same as in negamax: null window first, full window only if the move is better
+                    score = -negamax(depth - 1, 1, -alpha - 1, -alpha, oppColor, false);
+                    if (score > alpha) {
+                        score = -negamax(depth - 1, 1, -infinity, -alpha, oppColor, false);
+                    }
+                }
+                undoMove(move, oppColor, 0, numReversed);
+                if (stopped) {
+                    return moves[order[0]];
+                }
+                if (score > alpha) {
+                    alpha = score;
+                    bestInd = i;
+                }
+            }
+            // search best move first on the next depth
+            int best = order[bestInd];
+            System.arraycopy(order, 0, order, 1, bestInd);
+            order[0] = best;
+            bestMoveDepth = depth;
+        }
+        return moves[order[0]];
+    }
+
+    // score of the position for color with full window and without ProbCut (for calibration)
+    public int score(int depth) {
+        return negamax(depth, 0, -infinity, infinity, color, false);
+    }
+
+    // score is from the side of curColor
+    private int negamax(int depth, int ply, int alpha, int beta, byte curColor, boolean passed) {
+        if (stopped) {
+            return 0;
+        }
+        ++nodes;
+        // difference of nanoTime values doesn't overflow (unlike comparison of them)
+        if (timeLimit > 0 && (nodes & timeCheckMask) == 0 && System.nanoTime() - startTime > timeLimit) {
+            stopped = true;
+            return 0;
+        }
+        // field is full - game is finished whatever depth is left
+        int empty = numEmpty - ply;
+        if (empty == 0) {
+            return finalScore(curColor);
+        }
+        if (depth == 0) {
+            return evaluate(curColor);
+        }
+
+        if (selectivity > 0 && depth >= minProbCutDepth && depth <= maxProbCutDepth && depth < empty
+                && empty >= minProbCutEmpty) {
+            double[] checks = probCutChecks[Math.min(empty / 10, 5)][depth];
+            double threshold = probCutThresholds[selectivity];
+            for (int i = 0; i < checks.length; i += 4) {
+                int shallowDepth = (int) checks[i];
+                double a = checks[i + 1], b = checks[i + 2], sigma = checks[i + 3];
+                int bound = (int) Math.ceil((beta + threshold * sigma - b) / a);
+                // every bound is checked only if it's not infinite (and not a finished game)
+                if (beta < winScore && bound < winScore
+                        && negamax(shallowDepth, ply, bound - 1, bound, curColor, passed) >= bound) {
+                    return beta;
+                }
+                bound = (int) Math.floor((alpha - threshold * sigma - b) / a);
+                if (alpha > -winScore && bound > -winScore
+                        && negamax(shallowDepth, ply, bound, bound + 1, curColor, passed) <= bound) {
+                    return alpha;
+                }
+                if (stopped) {
+                    return 0;
+                }
+            }
+        }
+
+        byte oppColor = Game.opposite(curColor);
+        byte[] nodeMoves = plyMoves[ply];
+        int numNodeMoves = Game.findMoves(field, curColor, nodeMoves);
+        if (numNodeMoves == 0) {
+            // both players can't move - game is finished
+            if (passed) {
+                return finalScore(curColor);
+            }
+            // pass doesn't use a ply of reversed cells, so ply stays the same
+            return -negamax(depth, ply, -beta, -alpha, oppColor, true);
+        }
+        if (depth >= minOrderingDepth) {
+            sortMoves(ply, numNodeMoves, curColor);
+        }
+
+        for (int i = 0; i < numNodeMoves; ++i) {
+            int pos = nodeMoves[i];
+            int numReversed = makeMove(pos, curColor, ply);
+            int score;
+            if (i == 0) {
+                score = -negamax(depth - 1, ply + 1, -beta, -alpha, oppColor, false);
+            } else {
+                // other moves are expected to be worse than the first one, so null window is enough
+                // if not, the move is searched again with full window
+                score = -negamax(depth - 1, ply + 1, -alpha - 1, -alpha, oppColor, false);
+                if (score > alpha && score < beta) {
+                    score = -negamax(depth - 1, ply + 1, -beta, -alpha, oppColor, false);
+                }
+            }
+            undoMove(pos, oppColor, ply, numReversed);
+            if (score > alpha) {
+                alpha = score;
+                if (alpha >= beta) {
+                    return alpha;
+                }
+            }
+        }
+        return alpha;
+    }
+
+    // moves that look better are searched first (so there are more cuts)
+    private void sortMoves(int ply, int numNodeMoves, byte curColor) {
+        byte[] nodeMoves = plyMoves[ply];
+        int[] keys = moveKeys[ply];
+        byte oppColor = Game.opposite(curColor);
+        for (int i = 0; i < numNodeMoves; ++i) {
+            int numReversed = makeMove(nodeMoves[i], curColor, ply);
+            keys[i] = evaluate(curColor);
+            undoMove(nodeMoves[i], oppColor, ply, numReversed);
+        }
+        // insertion sort, there are few moves
+        for (int i = 1; i < numNodeMoves; ++i) {
+            byte move = nodeMoves[i];
+            int key = keys[i];
+            int j = i - 1;
+            while (j >= 0 && keys[j] < key) {
+                nodeMoves[j + 1] = nodeMoves[j];
+                keys[j + 1] = keys[j];
+                --j;
+            }
+            nodeMoves[j + 1] = move;
+            keys[j + 1] = key;
+        }
+    }
+
+    // puts chip on pos and reverses cells, returns number of reversed cells (0 if move is not possible)
+    private int makeMove(int pos, byte curColor, int ply) {
+        byte[] cells = reversed[ply];
+        int numReversed = Game.findReversed(field, pos, curColor, cells, 0);
+        if (numReversed > 0) {
+            field[pos] = curColor;
+            for (int i = 0; i < numReversed; ++i) {
+                field[cells[i]] = curColor;
+            }
+        }
+        return numReversed;
+    }
+
+    // oppColor is color of reversed cells before the move
+    private void undoMove(int pos, byte oppColor, int ply, int numReversed) {
+        byte[] cells = reversed[ply];
+        field[pos] = Game.colorless;
+        for (int i = 0; i < numReversed; ++i) {
+            field[cells[i]] = oppColor;
+        }
+    }
+
+    private int evaluate(byte curColor) {
+        int score = 0;
+        for (int pos = 11; pos < 89; ++pos) {
+            if (field[pos] == curColor) {
+                score += cellWeights[pos];
+            } else if (field[pos] != Game.colorless) {
+                score -= cellWeights[pos];
+            }
+        }
+        return score;
+    }
+
+    private int finalScore(byte curColor) {
+        int diff = 0;
+        for (int pos = 11; pos < 89; ++pos) {
+            if (field[pos] == curColor) {
+                ++diff;
+            } else if (field[pos] != Game.colorless) {
+                --diff;
+            }
+        }
+        return Integer.signum(diff) * winScore + diff;
+    }
+}
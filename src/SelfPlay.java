@@ -0,0 +1,255 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+// games of the engine with itself, not used by the game
+// "calibrate [games]" - fits parameters of ProbCut (prints rows of Search.probCutParams)
+// "match [time] [openings]" - plays selective search (as PROFESSIONAL) against full search
+// with the same time for a move (in milliseconds), every opening is played with both colors
+public class SelfPlay {
+    private static final Game.CellColor[] cellColors = Game.CellColor.values();
+    // random moves make positions more different
+    private static final double randomMoveChance = 0.2;
+    private static final double sampleChance = 0.15;
+    private static final int openingLength = 8;
+    private static final int minSamples = 30;
+
+    public static void main(String[] args) {
+        if (args.length > 0 && args[0].equals("calibrate")) {
+            calibrate(args.length > 1 ? Integer.parseInt(args[1]) : 200);
+        } else if (args.length > 0 && args[0].equals("match")) {
+            match(args.length > 1 ? Long.parseLong(args[1]) : 100, args.length > 2 ? Integer.parseInt(args[2]) : 20);
+        } else {
+            System.out.println("usage: SelfPlay calibrate [games] | match [time] [openings]");
+        }
+    }
+
+    private static void calibrate(int numGames) {
+        Random random = new Random(1);
+        // samples[stage] contains scores of positions for depths from 0 to Search.maxProbCutDepth
+        List<List<int[]>> samples = new ArrayList<>();
+        for (int stage = 0; stage < 6; ++stage) {
+            samples.add(new ArrayList<>());
+        }
+
+        byte[] moves = new byte[40];
+        for (int game = 0; game < numGames; ++game) {
+            byte[] field = startField();
+            // white moves first (as in Game)
+            byte color = Game.white;
+            int passes = 0;
+            while (passes < 2) {
+                int numMoves = Game.findMoves(field, color, moves);
+                if (numMoves == 0) {
+                    ++passes;
+                    color = Game.opposite(color);
+                    continue;
+                }
+                passes = 0;
+
+                int empty = countEmpty(field);
+                if (empty >= 10 && empty < 60 && random.nextDouble() < sampleChance) {
+                    int[] scores = new int[Search.maxProbCutDepth + 1];
+                    for (int depth = 1; depth <= Search.maxProbCutDepth; ++depth) {
+                        scores[depth] = new Search(field.clone(), cellColors[color], moves, 0, 0).score(depth);
+                    }
+                    samples.get(empty / 10).add(scores);
+                }
+
+                int move;
+                if (random.nextDouble() < randomMoveChance) {
+                    move = moves[random.nextInt(numMoves)];
+                } else {
+                    move = greedyMove(field, color, moves, numMoves);
+                }
+                play(field, move, color);
+                color = Game.opposite(color);
+            }
+            System.err.println("game " + (game + 1) + " of " + numGames);
+        }
+
+        for (int stage = 1; stage < 6; ++stage) {
+            for (int depth = 3; depth <= Search.maxProbCutDepth; ++depth) {
+                for (int shallowDepth: shallowDepths(depth)) {
+                    printFit(stage, depth, shallowDepth, samples.get(stage));
+                }
+            }
+        }
+    }
+
+    // shallow depths have the same parity as depth (evaluation depends on who moved last)
+    // about half of depth and one more check two plies shallower
+    private static int[] shallowDepths(int depth) {
+        int shallowDepth = depth / 2;
+        if ((depth - shallowDepth) % 2 != 0) {
+            --shallowDepth;
+        }
+        if (shallowDepth > 2) {
+            return new int[] {shallowDepth - 2, shallowDepth};
+        }
+        return new int[] {shallowDepth};
+    }
+
+    // least squares for deep = a * shallow + b, finished games are not used
+    private static void printFit(int stage, int depth, int shallowDepth, List<int[]> samples) {
+        double n = 0, sumX = 0, sumY = 0, sumXX = 0, sumXY = 0;
+        for (int[] scores: samples) {
+            int x = scores[shallowDepth], y = scores[depth];
+            if (Math.abs(x) >= Search.winScore || Math.abs(y) >= Search.winScore) {
+                continue;
+            }
+            ++n;
+            sumX += x;
+            sumY += y;
+            sumXX += (double) x * x;
+            sumXY += (double) x * y;
+        }
+        double a = (n * sumXY - sumX * sumY) / (n * sumXX - sumX * sumX);
+        // shallow search tells nothing (ProbCut divides by a)
+        if (n < minSamples || !(a > 0)) {
+            System.out.printf("            // no fit for {%d, %d, %d}, %d positions%n", stage, depth, shallowDepth, (int) n);
+            return;
+        }
+        double b = (sumY - a * sumX) / n;
+        double sumErr = 0;
+        for (int[] scores: samples) {
+            int x = scores[shallowDepth], y = scores[depth];
+            if (Math.abs(x) >= Search.winScore || Math.abs(y) >= Search.winScore) {
+                continue;
+            }
+            sumErr += (y - a * x - b) * (y - a * x - b);
+        }
+        double sigma = Math.sqrt(sumErr / n);
+        System.out.printf("            {%d, %d, %d, %.3f, %.2f, %.2f}, // %d positions%n",
+                stage, depth, shallowDepth, a, b, sigma, (int) n);
+    }
+
+    private static void match(long time, int numOpenings) {
+        Random random = new Random(2);
+        int selectivity = Game.Opponent.PROFESSIONAL.selectivity;
+        int wins = 0, draws = 0, losses = 0, discs = 0;
+        long[] sumDepth = new long[2];
+        long[] numSearches = new long[2];
+        byte[] moves = new byte[40];
+
+        for (int opening = 0; opening < numOpenings; ++opening) {
+            byte[] start = randomOpening(random, moves);
+            for (int selectiveSide = 0; selectiveSide < 2; ++selectiveSide) {
+                byte[] field = start.clone();
+                // after even number of moves it's white again
+                byte color = Game.white;
+                byte selectiveColor = selectiveSide == 0 ? Game.black : Game.white;
+                int passes = 0;
+                while (passes < 2) {
+                    int numMoves = Game.findMoves(field, color, moves);
+                    if (numMoves == 0) {
+                        ++passes;
+                        color = Game.opposite(color);
+                        continue;
+                    }
+                    passes = 0;
+                    int side = color == selectiveColor ? 0 : 1;
+                    Search search = new Search(field.clone(), cellColors[color], moves, numMoves,
+                            side == 0 ? selectivity : 0);
+                    play(field, search.findBestMove(time), color);
+                    sumDepth[side] += search.getBestMoveDepth();
+                    ++numSearches[side];
+                    color = Game.opposite(color);
+                }
+
+                int diff = discDifference(field, selectiveColor);
+                discs += diff;
+                if (diff > 0) {
+                    ++wins;
+                } else if (diff == 0) {
+                    ++draws;
+                } else {
+                    ++losses;
+                }
+            }
+            System.err.println("opening " + (opening + 1) + " of " + numOpenings);
+        }
+
+        System.out.printf("selectivity %d against full search, %d ms for a move%n", selectivity, time);
+        System.out.printf("wins %d, draws %d, losses %d, average disc difference %.2f%n",
+                wins, draws, losses, (double) discs / (2 * numOpenings));
+        System.out.printf("average depth: selective %.2f, full %.2f%n",
+                (double) sumDepth[0] / numSearches[0], (double) sumDepth[1] / numSearches[1]);
+
+        // win - 1 point, draw - 1/2, z above 2 means that selective search is better with 95% confidence
+        int numGames = 2 * numOpenings;
+        double score = (wins + 0.5 * draws) / numGames;
+        double variance = (wins + 0.25 * draws) / numGames - score * score;
+        double error = Math.sqrt(variance / numGames);
+        System.out.printf("score %.1f%% +- %.1f%%, z = %.2f%n", 100 * score, 100 * error, (score - 0.5) / error);
+    }
+
+    private static byte[] randomOpening(Random random, byte[] moves) {
+        byte[] field = startField();
+        byte color = Game.white;
+        for (int i = 0; i < openingLength; ++i) {
+            int numMoves = Game.findMoves(field, color, moves);
+            play(field, moves[random.nextInt(numMoves)], color);
+            color = Game.opposite(color);
+        }
+        return field;
+    }
+
+    // move with the best score of search on depth 1 after it
+    private static int greedyMove(byte[] field, byte color, byte[] moves, int numMoves) {
+        int bestMove = moves[0];
+        int bestScore = Integer.MIN_VALUE;
+        for (int i = 0; i < numMoves; ++i) {
+            byte[] next = field.clone();
+            play(next, moves[i], color);
+            int score = -new Search(next, cellColors[Game.opposite(color)], moves, 0, 0).score(1);
+            if (score > bestScore) {
+                bestScore = score;
+                bestMove = moves[i];
+            }
+        }
+        return bestMove;
+    }
+
+    private static byte[] startField() {
+        byte[] field = new byte[100];
+        field[44] = Game.white;
+        field[45] = Game.black;
+        field[54] = Game.black;
+        field[55] = Game.white;
+        return field;
+    }
+
+    private static void play(byte[] field, int pos, byte color) {
+        byte[] cells = new byte[20];
+        int numCells = Game.findReversed(field, pos, color, cells, 0);
+        field[pos] = color;
+        for (int i = 0; i < numCells; ++i) {
+            field[cells[i]] = color;
+        }
+    }
+
+    private static int countEmpty(byte[] field) {
+        int empty = 0;
+        for (int y = 0; y < 8; ++y) {
+            for (int x = 0; x < 8; ++x) {
+                if (field[Game.square(x, y)] == Game.colorless) {
+                    ++empty;
+                }
+            }
+        }
+        return empty;
+    }
+
+    private static int discDifference(byte[] field, byte color) {
+        int diff = 0;
+        for (int pos = 11; pos < 89; ++pos) {
+            if (field[pos] == color) {
+                ++diff;
+            } else if (field[pos] == Game.opposite(color)) {
+                --diff;
+            }
+        }
+        return diff;
+    }
+}